@@ -0,0 +1,21 @@
+#!/bin/sh
+# Compiles the calculator into bin/, packages it as calculator.jar and
+# creates calculator.jsa, an application class-data-sharing (AppCDS)
+# archive of every class loaded by a warm-up run over sample_input.txt.
+# The archive needs JDK 13 or later, and has to be recreated whenever the
+# JDK or calculator.jar changes.
+set -e
+cd "$(dirname "$0")/.."
+
+rm -rf bin calculator.jar calculator.jsa
+# -XDstringConcat=inline compiles `+` on strings to StringBuilder calls, so
+# that launching does not have to bootstrap java.lang.invoke for them
+javac -XDstringConcat=inline -d bin -sourcepath src $(find src -name '*.java')
+jar cf calculator.jar -C bin .
+
+# training run, CDS only archives classes loaded from jar files
+java -XX:ArchiveClassesAtExit=calculator.jsa -cp calculator.jar \
+  aprotyas.calculator.InfixCalculator --warmup sample_input.txt
+
+echo "Run with: java -XX:SharedArchiveFile=calculator.jsa -cp calculator.jar" \
+  "aprotyas.calculator.InfixCalculator [input-file] [output-file]"
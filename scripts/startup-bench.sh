@@ -0,0 +1,32 @@
+#!/bin/bash
+# Measures the wall time of cold launches of the calculator over
+# sample_input.txt, without class-data sharing at all, with only the JDK's
+# default archive, and with the calculator.jsa archive made by build.sh.
+# Usage: scripts/startup-bench.sh [launches]
+set -e
+cd "$(dirname "$0")/.."
+
+launches=${1:-20}
+if [ ! -f calculator.jsa ]; then
+  echo "calculator.jsa not found, run scripts/build.sh first"
+  exit 1
+fi
+out=$(mktemp)
+trap 'rm -f "$out"' EXIT
+
+launch() {
+  # average wall time of `launches` launches, in milliseconds
+  local label=$1
+  shift
+  local start end
+  start=$(date +%s%N)
+  for ((i = 0; i < launches; ++i)); do
+    java "$@" -cp calculator.jar aprotyas.calculator.InfixCalculator sample_input.txt "$out"
+  done
+  end=$(date +%s%N)
+  printf "%-28s %6d ms/launch\n" "$label" $(((end - start) / launches / 1000000))
+}
+
+launch "no class-data sharing" -Xshare:off
+launch "JDK archive only" -Xshare:auto
+launch "JDK + calculator.jsa" -XX:SharedArchiveFile=calculator.jsa
@@ -0,0 +1,355 @@
+/*
+ *  File name: DifferentialFuzzer.java
+ *  Package: aprotyas.bench
+ *  File description: `DifferentialFuzzer` generates random infix
+ *  expressions - nested operators, functions, ternaries and parentheses,
+ *  some of them deliberately malformed - and runs each one through the
+ *  reference pipeline (LegacyReference: Scanner tokenizing, String.format()
+ *  formatting, eager evaluation) and every engine in ENGINES, starting with
+ *  the path the CLI takes. Results, error messages included, have to match
+ *  exactly. The fast tokenizer and result formatter are also checked on
+ *  their own against the Scanner and String.format() versions. Each
+ *  mismatch is shrunk to a minimal reproducer and reported, along with the
+ *  throughput of every engine. Usage:
+ *  	java -cp bin aprotyas.bench.DifferentialFuzzer [cases] [seed] [max-depth]
+ *  The exit status is 1 if any mismatch was found.
+ */
+
+package aprotyas.bench;
+
+import aprotyas.calculator.InfixCalculator;
+import aprotyas.calculator.PostfixCalculator;
+import aprotyas.util.Operator;
+import aprotyas.util.OperatorRegistry;
+import aprotyas.util.Util;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.function.Predicate;
+
+public class DifferentialFuzzer {
+  // an evaluation engine, maps an infix expression to its output line
+  interface Engine {
+    String name();
+
+    String evaluate(String infix_expression) throws Exception;
+
+    // true if the engine skips operands of `&`, `|` and `? :`, and so does not
+    // report an error raised only inside a skipped operand
+    boolean shortCircuits();
+  }
+
+  static final Engine REFERENCE =
+      new Engine() {
+        public String name() {
+          return "reference";
+        }
+
+        public String evaluate(String infix_expression) {
+          return LegacyReference.evaluate(infix_expression);
+        }
+
+        public boolean shortCircuits() {
+          return false;
+        }
+      };
+
+  // alternative engines, add new ones here
+  static final Engine[] ENGINES = {
+    new Engine() {
+      // exactly what InfixCalculator.main() does for each line
+      public String name() {
+        return "cli";
+      }
+
+      public String evaluate(String infix_expression) {
+        return InfixCalculator.evaluate(infix_expression, null);
+      }
+
+      public boolean shortCircuits() {
+        return true;
+      }
+    },
+    new Engine() {
+      // the same, evaluating every operand
+      public String name() {
+        return "eager";
+      }
+
+      public String evaluate(String infix_expression) {
+        String postfix_expression;
+        try {
+          postfix_expression = InfixCalculator.infixToPostfix(infix_expression);
+        } catch (Exception e) {
+          postfix_expression = "Error," + e.getMessage();
+        }
+        return PostfixCalculator.computeExpression(postfix_expression, false);
+      }
+
+      public boolean shortCircuits() {
+        return false;
+      }
+    },
+  };
+
+  static final int MAX_REPORTED = 10; // reproducers printed per engine or check
+
+  public static void main(String[] args) {
+    int cases = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+    int max_depth = args.length > 2 ? Integer.parseInt(args[2]) : 6;
+    System.out.println("cases " + cases + ", seed " + seed + ", max depth " + max_depth);
+
+    Random random = new Random(seed);
+    ArrayList<Operator> operators = new ArrayList<Operator>(OperatorRegistry.operators());
+    long reference_nanos = 0;
+    long[] nanos = new long[ENGINES.length];
+    int[] mismatches = new int[ENGINES.length];
+    int[] skipped_errors = new int[ENGINES.length];
+    int tokenizer_mismatches = 0;
+    int formatter_mismatches = 0;
+    ArrayList<String> reported = new ArrayList<String>();
+
+    for (int n = 0; n < cases; ++n) {
+      String expression = generate(random, operators, max_depth);
+
+      long start = System.nanoTime();
+      String expected = run(REFERENCE, expression);
+      reference_nanos += System.nanoTime() - start;
+
+      for (int e = 0; e < ENGINES.length; ++e) {
+        Engine engine = ENGINES[e];
+        start = System.nanoTime();
+        String actual = run(engine, expression);
+        nanos[e] += System.nanoTime() - start;
+
+        if (actual.equals(expected)) continue;
+        if (isSkippedError(engine, expression, expected, actual)) {
+          ++skipped_errors[e];
+          continue;
+        }
+        if (++mismatches[e] > MAX_REPORTED) continue;
+
+        String minimal = shrink(expression, candidate -> fails(engine, candidate));
+        if (reported.contains(engine.name() + minimal)) continue; // already reported
+        reported.add(engine.name() + minimal);
+        System.out.println("MISMATCH " + engine.name() + ": " + quote(minimal));
+        System.out.println("  reference: " + run(REFERENCE, minimal));
+        System.out.println("  " + engine.name() + ": " + run(engine, minimal));
+        System.out.println("  (generated as: " + quote(expression) + ")");
+      }
+
+      // the tokenizer on its own, as token differences can cancel out later
+      if (tokenizerFails(expression) && ++tokenizer_mismatches <= MAX_REPORTED) {
+        String minimal = shrink(expression, DifferentialFuzzer::tokenizerFails);
+        if (!reported.contains("tokenizer" + minimal)) {
+          reported.add("tokenizer" + minimal);
+          System.out.println("MISMATCH tokenizer: " + quote(minimal));
+          System.out.println("  reference: " + tokens(minimal, true));
+          System.out.println("  tokenizer: " + tokens(minimal, false));
+        }
+      }
+
+      // the formatter on its own, over all kinds of floats
+      float value = randomFloat(random);
+      String formatted = LegacyReference.format(value);
+      if (!Util.formatResult(value).equals(formatted) && ++formatter_mismatches <= MAX_REPORTED) {
+        System.out.println(
+            "MISMATCH formatter: "
+                + value
+                + " (bits 0x"
+                + Integer.toHexString(Float.floatToRawIntBits(value))
+                + ")");
+        System.out.println("  reference: " + formatted);
+        System.out.println("  formatter: " + Util.formatResult(value));
+      }
+    }
+
+    report(REFERENCE.name(), reference_nanos, cases, "");
+    boolean failed = tokenizer_mismatches > 0 || formatter_mismatches > 0;
+    for (int e = 0; e < ENGINES.length; ++e) {
+      report(
+          ENGINES[e].name(),
+          nanos[e],
+          cases,
+          "  mismatches " + mismatches[e] + "  skipped-operand errors " + skipped_errors[e]);
+      failed |= mismatches[e] > 0;
+    }
+    System.out.println("tokenizer  mismatches " + tokenizer_mismatches);
+    System.out.println("formatter  mismatches " + formatter_mismatches);
+    if (failed) System.exit(1);
+  }
+
+  static String run(Engine engine, String infix_expression) {
+    // crashes are outputs too, and have to match as well
+    try {
+      return engine.evaluate(infix_expression);
+    } catch (Exception e) {
+      return "[" + e.getClass().getName() + ": " + e.getMessage() + "]";
+    }
+  }
+
+  static boolean isSkippedError(Engine engine, String expression, String expected, String actual) {
+    // the one documented difference of short-circuiting engines: a divide by
+    // 0 that only happens inside an operand they never evaluate. Accepted if
+    // the reference, short-circuiting the same way, skipped such an operand
+    // and produced exactly the engine's output
+    if (!engine.shortCircuits() || !expected.equals("Divide by 0 error")) {
+      return false;
+    }
+    LegacyReference.ShortCircuitResult reference;
+    try {
+      reference = LegacyReference.evaluateShortCircuit(expression);
+    } catch (Exception e) {
+      return false;
+    }
+    return reference.skipped_divide_by_zero && actual.equals(reference.output);
+  }
+
+  static boolean fails(Engine engine, String expression) {
+    String expected = run(REFERENCE, expression);
+    String actual = run(engine, expression);
+    return !actual.equals(expected) && !isSkippedError(engine, expression, expected, actual);
+  }
+
+  static String tokens(String expression, boolean reference) {
+    try {
+      return reference
+          ? LegacyReference.tokenize(expression).toString()
+          : InfixCalculator.parseInfix(expression).toString();
+    } catch (Exception e) {
+      return "[" + e.getClass().getName() + ": " + e.getMessage() + "]";
+    }
+  }
+
+  static boolean tokenizerFails(String expression) {
+    return !tokens(expression, false).equals(tokens(expression, true));
+  }
+
+  static String shrink(String expression, Predicate<String> failing) {
+    // delta debugging over characters: drop chunks of decreasing size for as
+    // long as the failure persists
+    String current = expression;
+    int chunk = Math.max(current.length() / 2, 1);
+    while (chunk >= 1) {
+      boolean reduced = false;
+      int start = 0;
+      while (start + chunk <= current.length()) {
+        String candidate = current.substring(0, start) + current.substring(start + chunk);
+        if (failing.test(candidate)) {
+          current = candidate;
+          reduced = true;
+        } else {
+          start += chunk;
+        }
+      }
+      if (!reduced) chunk /= 2;
+      chunk = Math.min(chunk, current.length());
+    }
+    return current;
+  }
+
+  static String quote(String expression) {
+    // make stray whitespace and control characters visible
+    StringBuilder builder = new StringBuilder("\"");
+    for (int i = 0; i < expression.length(); ++i) {
+      char c = expression.charAt(i);
+      if (c < ' ' || c > '~') {
+        String hex = Integer.toHexString(c);
+        builder.append("\\u").append("0000".substring(hex.length())).append(hex);
+      } else {
+        builder.append(c);
+      }
+    }
+    return builder.append('"').toString();
+  }
+
+  static final String[] NUMBERS = {"0", "1", "2", "0.5", "10", "3.1415927", "0.001", "99.99"};
+  static final String[] JUNK = {
+    "(", ")", ",", "?", ":", ".", "x", "#", "1.2.3", "\\", "--", "sin", "\t", "\u00a0", "\u001c",
+    "\u2003", "_", "1e3", "NaN"
+  };
+
+  static String generate(Random random, ArrayList<Operator> operators, int max_depth) {
+    StringBuilder builder = new StringBuilder();
+    expression(random, operators, random.nextInt(max_depth + 1), builder);
+    if (random.nextInt(10) == 0) {
+      // malformed: stray token inserted, or a character dropped
+      int at = random.nextInt(builder.length() + 1);
+      if (random.nextBoolean() || builder.length() == 0) {
+        builder.insert(at, JUNK[random.nextInt(JUNK.length)]);
+      } else {
+        builder.deleteCharAt(Math.min(at, builder.length() - 1));
+      }
+    }
+    return builder.toString();
+  }
+
+  static void expression(
+      Random random, ArrayList<Operator> operators, int depth, StringBuilder builder) {
+    if (depth == 0 || random.nextInt(4) == 0) {
+      // operand
+      if (random.nextBoolean()) {
+        builder.append(NUMBERS[random.nextInt(NUMBERS.length)]);
+      } else {
+        builder.append(random.nextInt(100));
+        if (random.nextBoolean()) builder.append('.').append(random.nextInt(100));
+      }
+      return;
+    }
+    if (random.nextInt(6) == 0) {
+      // parenthesized
+      builder.append('(');
+      expression(random, operators, depth - 1, builder);
+      builder.append(')');
+      return;
+    }
+
+    Operator operator = operators.get(random.nextInt(operators.size()));
+    String symbol = operator.symbol();
+    String space = random.nextBoolean() ? " " : "";
+    if (operator.arity() == 3) {
+      // the ternary, written `cond ? a : b`
+      expression(random, operators, depth - 1, builder);
+      builder.append(space).append('?').append(space);
+      expression(random, operators, depth - 1, builder);
+      builder.append(space).append(':').append(space);
+      expression(random, operators, depth - 1, builder);
+    } else if (operator.arity() == 2 && !Character.isLetter(symbol.charAt(0))) {
+      expression(random, operators, depth - 1, builder);
+      builder.append(space).append(symbol).append(space);
+      expression(random, operators, depth - 1, builder);
+    } else {
+      // prefix operator or function call, arguments in parentheses (mostly)
+      boolean parenthesized = operator.arity() > 1 || random.nextInt(3) != 0;
+      builder.append(symbol).append(parenthesized ? "(" : " ");
+      for (int i = 0; i < operator.arity(); ++i) {
+        if (i > 0) builder.append(',').append(space);
+        expression(random, operators, depth - 1, builder);
+      }
+      if (parenthesized) builder.append(')');
+    }
+  }
+
+  static float randomFloat(Random random) {
+    // any bit pattern, round values, values near a rounding boundary and
+    // values over a wide range of magnitudes
+    switch (random.nextInt(4)) {
+      case 0:
+        return Float.intBitsToFloat(random.nextInt());
+      case 1:
+        return (random.nextInt(2000000) - 1000000) / 1000f;
+      case 2:
+        return (float) ((random.nextInt(200000) - 100000) / 1000.0 + 0.005);
+      default:
+        return (float) (random.nextGaussian() * Math.pow(10, random.nextInt(12) - 4));
+    }
+  }
+
+  static void report(String name, long nanos, int cases, String suffix) {
+    System.out.println(
+        String.format(
+                "%-10s %10.0f expressions/s  %8.2f us/expression",
+                name, cases / (nanos / 1e9), nanos / 1e3 / cases)
+            + suffix);
+  }
+}
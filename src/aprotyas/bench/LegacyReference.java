@@ -0,0 +1,472 @@
+/*
+ *  File name: LegacyReference.java
+ *  Package: aprotyas.bench
+ *  File description: `LegacyReference` is the calculator pipeline as it was
+ *  before any performance work - java.util.Scanner tokenizing with regex
+ *  delimiters, if-chain operator tables, String.format("%.2f") formatting
+ *  and Scanner splitting of postfix expressions - extended only with the
+ *  language added since (log, exp, sqrt, min, max, comma separated
+ *  arguments and the `cond ? a : b` ternary). It uses nothing from
+ *  aprotyas.calculator or the OperatorRegistry, so that DifferentialFuzzer
+ *  can check those against it. The static functions in this class are:
+ *
+ *  i)   evaluate() - infix expression to output line, evaluating every
+ *  operand, exactly like InfixCalculator.main() used to
+ *
+ *  ii)  evaluateShortCircuit() - the same, skipping the operands of `&`,
+ *  `|` and `? :` that do not affect the result. Also tells whether a
+ *  skipped operand would have raised a divide by 0 error
+ *
+ *  iii) tokenize() and format() - the original Scanner tokenizer and
+ *  String.format() formatting on their own
+ */
+
+package aprotyas.bench;
+
+import java.util.ArrayList;
+import java.util.InputMismatchException;
+import java.util.Scanner;
+import java.util.Stack;
+
+public class LegacyReference {
+  // outcome of a short-circuit evaluation
+  static class ShortCircuitResult {
+    String output;
+    boolean skipped_divide_by_zero; // a skipped operand would have divided by 0
+  }
+
+  public static String evaluate(String infix_expression) {
+    return computeExpression(postfix(infix_expression));
+  }
+
+  public static ShortCircuitResult evaluateShortCircuit(String infix_expression) {
+    String postfix_expression = postfix(infix_expression);
+    ShortCircuitResult result = new ShortCircuitResult();
+    ArrayList<String> parsed_postfix = parsePostfix(postfix_expression);
+    if (parsed_postfix.isEmpty() || parsed_postfix.get(0).equals("Error")) {
+      result.output = computeExpression(postfix_expression);
+      return result;
+    }
+    Tree tree = Tree.build(parsed_postfix);
+    if (tree == null) {
+      // malformed expressions never get to skip anything
+      result.output = computeExpression(postfix_expression);
+      return result;
+    }
+    try {
+      result.output = tree.evaluate(parsed_postfix.size() - 1, true, result);
+    } catch (Exception err) {
+      result.output = err.getMessage();
+    }
+    return result;
+  }
+
+  static String postfix(String infix_expression) {
+    // conversion step as in InfixCalculator.main()
+    try {
+      return infixToPostfix(infix_expression);
+    } catch (Exception e) {
+      return "Error," + e.getMessage();
+    }
+  }
+
+  public static String format(float result) {
+    return String.format("%.2f", result);
+  }
+
+  // operator tables, kept in step with the built-ins of the OperatorRegistry
+
+  static boolean isNumber(String s) {
+    try {
+      Float.parseFloat(s);
+      return true;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  static int arity(String s) {
+    // 0 for anything that is not an operator
+    switch (s) {
+      case "!":
+      case "sin":
+      case "cos":
+      case "tan":
+      case "log":
+      case "exp":
+      case "sqrt":
+        return 1;
+      case "+":
+      case "-":
+      case "*":
+      case "/":
+      case "%":
+      case "^":
+      case ">":
+      case "<":
+      case "=":
+      case "&":
+      case "|":
+      case "min":
+      case "max":
+        return 2;
+      case ":":
+        return 3;
+      default:
+        return 0;
+    }
+  }
+
+  static int precedence(String s) {
+    switch (s) {
+      case ")":
+        return 11;
+      case "!":
+      case "log":
+      case "exp":
+      case "sqrt":
+      case "min":
+      case "max":
+        return 10;
+      case "^":
+        return 9;
+      case "*":
+      case "/":
+      case "%":
+        return 8;
+      case "+":
+      case "-":
+        return 7;
+      case "sin":
+      case "cos":
+      case "tan":
+        return 6;
+      case "<":
+      case ">":
+        return 5;
+      case "=":
+        return 4;
+      case "&":
+        return 3;
+      case "|":
+        return 2;
+      case ":":
+        return 1;
+      case "(":
+      case "?":
+        return 0;
+      default:
+        return -1;
+    }
+  }
+
+  static boolean isRightAssociative(String s) {
+    return s.equals("!")
+        || s.equals("^")
+        || s.equals("%")
+        || s.equals(":")
+        || s.equals("log")
+        || s.equals("exp")
+        || s.equals("sqrt")
+        || s.equals("min")
+        || s.equals("max");
+  }
+
+  static float apply(String operator, float[] operands) throws Exception {
+    switch (operator) {
+      case "+":
+        return operands[0] + operands[1];
+      case "-":
+        return operands[0] - operands[1];
+      case "*":
+        return operands[0] * operands[1];
+      case "/":
+        if (operands[1] == 0) {
+          throw new Exception("Divide by 0 error");
+        }
+        return operands[0] / operands[1];
+      case "%":
+        return operands[0] % operands[1];
+      case "^":
+        return (float) Math.pow(operands[0], operands[1]);
+      case ">":
+        return operands[0] > operands[1] ? 1 : 0;
+      case "<":
+        return operands[0] < operands[1] ? 1 : 0;
+      case "=":
+        return operands[0] == operands[1] ? 1 : 0;
+      case "&":
+        return operands[0] != 0 && operands[1] != 0 ? 1 : 0;
+      case "|":
+        return operands[0] != 0 || operands[1] != 0 ? 1 : 0;
+      case "min":
+        return Math.min(operands[0], operands[1]);
+      case "max":
+        return Math.max(operands[0], operands[1]);
+      case "!":
+        return !(operands[0] != 0) ? 1 : 0;
+      case "sin":
+        return (float) Math.sin(operands[0]);
+      case "cos":
+        return (float) Math.cos(operands[0]);
+      case "tan":
+        return (float) Math.tan(operands[0]);
+      case "log":
+        return (float) Math.log(operands[0]);
+      case "exp":
+        return (float) Math.exp(operands[0]);
+      case "sqrt":
+        return (float) Math.sqrt(operands[0]);
+      case ":":
+        return operands[0] != 0 ? operands[1] : operands[2];
+      default:
+        throw new Exception("Error during expression evaluation");
+    }
+  }
+
+  // infix to postfix, Shunting-Yard
+
+  static String infixToPostfix(String infix_expression) throws Exception {
+    ArrayList<String> expression = new ArrayList<String>();
+    Stack<String> operators = new Stack<String>();
+
+    for (String token : tokenize(infix_expression)) {
+      if (token.equals(":")) {
+        // close the ternary opened by the matching `?`
+        while (true) {
+          if (operators.empty() || operators.peek().equals("(")) {
+            throw new Exception("Imbalanced ternary expression");
+          }
+          if (operators.peek().equals("?")) break;
+          expression.add(operators.pop());
+        }
+        operators.pop();
+        operators.push(token);
+      } else if (arity(token) > 0 || token.equals("?")) {
+        // `?` is ordered against the stack like `:`
+        int token_precedence = precedence(token.equals("?") ? ":" : token);
+        while (true) {
+          if (operators.empty() || precedence(operators.peek()) == 0) {
+            operators.push(token);
+            break;
+          }
+          String top = operators.peek();
+          boolean found_lower_left =
+              token_precedence > precedence(top) && !isRightAssociative(top);
+          boolean found_equal_right =
+              token_precedence >= precedence(top) && isRightAssociative(top);
+          if (found_lower_left || found_equal_right) {
+            operators.push(token);
+            break;
+          }
+          expression.add(operators.pop());
+        }
+      } else if (isNumber(token)) {
+        expression.add(token);
+      } else if (token.equals("(")) {
+        operators.push(token);
+      } else if (token.equals(")")) {
+        while (true) {
+          if (operators.empty()) {
+            throw new Exception("Imbalanced infix expression");
+          }
+          String temp_token = operators.pop();
+          if (temp_token.equals("(")) break;
+          if (temp_token.equals("?")) {
+            throw new Exception("Imbalanced ternary expression");
+          }
+          expression.add(temp_token);
+        }
+      } else if (token.equals(",")) {
+        while (true) {
+          if (operators.empty()) {
+            throw new Exception("Imbalanced infix expression");
+          }
+          if (operators.peek().equals("(")) break;
+          if (operators.peek().equals("?")) {
+            throw new Exception("Imbalanced ternary expression");
+          }
+          expression.add(operators.pop());
+        }
+      } else {
+        throw new Exception("Invalid token in infix expression");
+      }
+    }
+
+    while (!operators.empty()) {
+      if (operators.peek().equals("?")) {
+        throw new Exception("Imbalanced ternary expression");
+      }
+      expression.add(operators.pop());
+    }
+    return String.join(",", expression);
+  }
+
+  public static ArrayList<String> tokenize(String infix_expression) {
+    // the original parseInfix(), verbatim
+    ArrayList<String> parsed_infix = new ArrayList<String>();
+
+    String search_pattern =
+        "((?<=\\p{javaWhitespace})|(?=\\p{javaWhitespace})|(?<=\\p{Punct})|(?=\\p{Punct}))";
+    Scanner scanner = new Scanner(infix_expression);
+    scanner.useDelimiter(search_pattern);
+
+    try {
+      while (scanner.hasNext()) {
+        // if next token is a full stop, create a floating point number
+        if (scanner.hasNext("\\.")) {
+          int last_idx = parsed_infix.size() - 1;
+          parsed_infix.set(last_idx, parsed_infix.get(last_idx) + scanner.next() + scanner.next());
+        }
+        // skip parsed whitespace
+        else if (scanner.hasNext("\\s")) {
+          scanner.next();
+        }
+        // add everything else
+        else parsed_infix.add(scanner.next());
+      }
+      scanner.close();
+    } catch (InputMismatchException err) {
+      System.out.println("Problem parsing infix expression: " + infix_expression);
+    }
+    return parsed_infix;
+  }
+
+  // postfix evaluation
+
+  static ArrayList<String> parsePostfix(String postfix_expression) {
+    // the original parsePostfix(), verbatim
+    ArrayList<String> parsed_postfix = new ArrayList<String>();
+
+    Scanner scanner = new Scanner(postfix_expression);
+    scanner.useDelimiter(",");
+
+    try {
+      while (scanner.hasNext()) {
+        parsed_postfix.add(scanner.next());
+      }
+      scanner.close();
+    } catch (InputMismatchException err) {
+      System.out.println("Problem parsing infix expression: " + postfix_expression);
+    }
+    return parsed_postfix;
+  }
+
+  static String computeExpression(String expression) {
+    // token-by-token evaluation, every operand evaluated
+    Stack<String> operands = new Stack<String>();
+
+    ArrayList<String> parsed_postfix = parsePostfix(expression);
+    if (parsed_postfix.get(0).equals("Error")) {
+      return parsed_postfix.get(1);
+    }
+
+    for (String token : parsed_postfix) {
+      if (isNumber(token)) {
+        operands.push(token);
+      } else if (arity(token) > 0) {
+        if (operands.size() < arity(token)) {
+          return "Error during expression evaluation";
+        }
+        float[] arguments = new float[arity(token)];
+        for (int i = arguments.length - 1; i >= 0; --i) {
+          arguments[i] = Float.parseFloat(operands.pop());
+        }
+        try {
+          operands.push(format(apply(token, arguments)));
+        } catch (Exception err) {
+          return err.getMessage();
+        }
+      } else {
+        return "Invalid token in postfix expression";
+      }
+    }
+
+    if (operands.size() != 1) {
+      return "Error during expression evaluation";
+    }
+    return operands.pop();
+  }
+
+  static class Tree {
+    // a well-formed postfix expression as a tree: children[i] holds the
+    // indices of the tokens ending the operands of token i
+    final ArrayList<String> tokens;
+    final int[][] children;
+
+    Tree(ArrayList<String> tokens, int[][] children) {
+      this.tokens = tokens;
+      this.children = children;
+    }
+
+    static Tree build(ArrayList<String> tokens) {
+      // null if the expression is malformed
+      int[][] children = new int[tokens.size()][];
+      Stack<Integer> ends = new Stack<Integer>();
+      for (int i = 0; i < tokens.size(); ++i) {
+        String token = tokens.get(i);
+        int arity = arity(token);
+        if (isNumber(token)) {
+          children[i] = new int[0];
+        } else if (arity > 0) {
+          if (ends.size() < arity) return null;
+          children[i] = new int[arity];
+          for (int c = arity - 1; c >= 0; --c) {
+            children[i][c] = ends.pop();
+          }
+        } else {
+          return null;
+        }
+        ends.push(i);
+      }
+      return ends.size() == 1 ? new Tree(tokens, children) : null;
+    }
+
+    String evaluate(int node, boolean short_circuit, ShortCircuitResult result)
+        throws Exception {
+      String token = tokens.get(node);
+      int[] operands = children[node];
+      if (operands.length == 0) {
+        return token;
+      }
+
+      if (short_circuit && (token.equals("&") || token.equals("|") || token.equals(":"))) {
+        float left = Float.parseFloat(evaluate(operands[0], true, result));
+        boolean condition = left != 0;
+        if (token.equals("&") && !condition) {
+          skip(operands[1], result);
+          return "0.00";
+        }
+        if (token.equals("|") && condition) {
+          skip(operands[1], result);
+          return "1.00";
+        }
+        if (token.equals(":")) {
+          skip(operands[condition ? 2 : 1], result);
+          String chosen = evaluate(operands[condition ? 1 : 2], true, result);
+          return format(Float.parseFloat(chosen));
+        }
+        // `&` with a true or `|` with a false left operand: both needed
+        float right = Float.parseFloat(evaluate(operands[1], true, result));
+        return format(apply(token, new float[] {left, right}));
+      }
+
+      float[] arguments = new float[operands.length];
+      for (int i = 0; i < operands.length; ++i) {
+        arguments[i] = Float.parseFloat(evaluate(operands[i], short_circuit, result));
+      }
+      return format(apply(token, arguments));
+    }
+
+    void skip(int node, ShortCircuitResult result) {
+      // evaluate the skipped operand anyway, only to see whether it divides by 0
+      try {
+        evaluate(node, false, result);
+      } catch (Exception err) {
+        if (err.getMessage().equals("Divide by 0 error")) {
+          result.skipped_divide_by_zero = true;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ *  File name: ShortCircuitBenchmark.java
+ *  Package: aprotyas.bench
+ *  File description: `ShortCircuitBenchmark` times the evaluation of
+ *  boolean-heavy postfix expressions with and without short-circuiting
+ *  (PostfixCalculator.computeExpression(expression, short_circuit)), and
+ *  checks that both produce the same result. Usage:
+ *  	java -cp bin aprotyas.bench.ShortCircuitBenchmark [iterations]
+ */
+
+package aprotyas.bench;
+
+import aprotyas.calculator.InfixCalculator;
+import aprotyas.calculator.PostfixCalculator;
+
+public class ShortCircuitBenchmark {
+  // an expensive right-hand side: trig chains and nested powers
+  static final String HEAVY =
+      "(sin((3.1415927 ^ 2) ^ 0.5) ^ 2 + cos((3.1415927 ^ 2) ^ 0.5) ^ 2"
+          + " + tan(2 ^ 2 ^ 0.25) * sqrt(log(exp(2 ^ 3))))";
+
+  static final String[] EXPRESSIONS = {
+    "(1 < 3) & (2 > 4) | " + HEAVY + " > 1",
+    "(1 > 3) & " + HEAVY,
+    "(1 < 3) | " + HEAVY,
+    "(2 > 4) & " + HEAVY + " | (1 = 1) | " + HEAVY,
+    "(1 = 1) ? 5 : " + HEAVY,
+    "(1 = 0) ? " + HEAVY + " : 5",
+    "(1 < 3) ? (0 & " + HEAVY + ") : (1 | " + HEAVY + ")",
+    // nothing to skip: measures the cost of the jumps themselves
+    "(1 < 3) & (2 < 4) & (3 < 5) & (4 < 6) | (5 = 5)",
+  };
+
+  public static void main(String[] args) throws Exception {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+
+    // convert once, only evaluation is being measured
+    String[] postfix = new String[EXPRESSIONS.length];
+    for (int i = 0; i < EXPRESSIONS.length; ++i) {
+      postfix[i] = InfixCalculator.infixToPostfix(EXPRESSIONS[i]);
+      String eager = PostfixCalculator.computeExpression(postfix[i], false);
+      String lazy = PostfixCalculator.computeExpression(postfix[i], true);
+      if (!eager.equals(lazy)) {
+        throw new Exception("Result mismatch for " + EXPRESSIONS[i] + ": " + eager + " / " + lazy);
+      }
+    }
+
+    // warm up both paths before measuring
+    run(postfix, false, iterations);
+    run(postfix, true, iterations);
+
+    long total_eager = 0;
+    long total_lazy = 0;
+    for (int i = 0; i < postfix.length; ++i) {
+      String[] single = {postfix[i]};
+      long eager = run(single, false, iterations);
+      long lazy = run(single, true, iterations);
+      total_eager += eager;
+      total_lazy += lazy;
+      report(EXPRESSIONS[i], eager, lazy, iterations);
+    }
+    report("all expressions", total_eager, total_lazy, iterations * postfix.length);
+  }
+
+  static long run(String[] postfix, boolean short_circuit, int iterations) {
+    long start = System.nanoTime();
+    for (int n = 0; n < iterations; ++n) {
+      for (String expression : postfix) {
+        PostfixCalculator.computeExpression(expression, short_circuit);
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  static void report(String name, long eager, long lazy, int evaluations) {
+    System.out.println(name);
+    System.out.println(
+        String.format(
+            "  eager %8d ns/expr  short-circuit %8d ns/expr  speedup %.2fx",
+            eager / evaluations,
+            lazy / evaluations,
+            (double) eager / lazy));
+  }
+}
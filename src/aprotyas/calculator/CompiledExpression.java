@@ -0,0 +1,196 @@
+/*
+ *  File name: CompiledExpression.java
+ *  Package: aprotyas.calculator
+ *  File description: `CompiledExpression` is a postfix expression compiled
+ *  into a flat list of instructions, so that evaluation can jump over
+ *  operands whose value is not needed:
+ *  	a) `a & b` skips `b` when `a` is false
+ *  	b) `a | b` skips `b` when `a` is true
+ *  	c) `cond ? a : b` (postfix token `:`) only evaluates one of `a`/`b`
+ *  Every other instruction behaves exactly like the corresponding step of
+ *  PostfixCalculator's token-by-token evaluation, including the "%.2f"
+ *  formatting of intermediate results. compile() returns null for
+ *  malformed postfix expressions, which are left to the plain evaluation
+ *  so that its error reporting is unchanged.
+ */
+
+package aprotyas.calculator;
+
+import static aprotyas.util.Util.*;
+
+import aprotyas.util.Operator;
+import aprotyas.util.OperatorRegistry;
+import aprotyas.util.Stack;
+import java.util.ArrayList;
+
+public class CompiledExpression {
+  // instruction set
+  static final int PUSH = 0; // push the operand `tokens[pc]`
+  static final int APPLY = 1; // apply `operators[pc]` to the top operands
+  static final int JUMP_IF_FALSE = 2; // `&`: if top is false replace it by 0.00 and jump
+  static final int JUMP_IF_TRUE = 3; // `|`: if top is true replace it by 1.00 and jump
+  static final int BRANCH_IF_FALSE = 4; // `?`: pop condition, jump if false
+  static final int JUMP = 5; // unconditional jump
+  static final int FORMAT = 6; // reformat top, the result of a ternary
+
+  private final int[] opcodes;
+  private final String[] tokens;
+  private final Operator[] operators;
+  private final int[] targets;
+
+  private CompiledExpression(int[] opcodes, String[] tokens, Operator[] operators, int[] targets) {
+    this.opcodes = opcodes;
+    this.tokens = tokens;
+    this.operators = operators;
+    this.targets = targets;
+  }
+
+  public static CompiledExpression compile(ArrayList<String> parsed_postfix) {
+    int n = parsed_postfix.size();
+    Operator[] token_operators = new Operator[n];
+
+    // first pass: find where the subexpression ending at each token starts,
+    // and which jump (if any) has to be placed right before each token
+    int[] prefix = new int[n]; // opcode of the instruction placed before token i, -1 if none
+    int[] prefix_owner = new int[n]; // token whose operand that instruction guards
+    int[] else_start = new int[n]; // for `:` tokens, first token of the `b` operand
+    for (int i = 0; i < n; ++i) {
+      prefix[i] = -1;
+    }
+
+    // stack of subexpression start indices, as an array since the size is bounded
+    int[] starts = new int[n];
+    int depth = 0;
+    for (int i = 0; i < n; ++i) {
+      String token = parsed_postfix.get(i);
+      Operator operator = OperatorRegistry.lookup(token);
+      if (operator != null) {
+        if (depth < operator.arity()) {
+          return null; // operand underflow
+        }
+        depth -= operator.arity();
+        if (operator.arity() == 2 && token.equals("&")) {
+          prefix[starts[depth + 1]] = JUMP_IF_FALSE;
+          prefix_owner[starts[depth + 1]] = i;
+        } else if (operator.arity() == 2 && token.equals("|")) {
+          prefix[starts[depth + 1]] = JUMP_IF_TRUE;
+          prefix_owner[starts[depth + 1]] = i;
+        } else if (operator.arity() == 3 && isTernaryElse(token)) {
+          prefix[starts[depth + 1]] = BRANCH_IF_FALSE;
+          prefix_owner[starts[depth + 1]] = i;
+          prefix[starts[depth + 2]] = JUMP;
+          prefix_owner[starts[depth + 2]] = i;
+          else_start[i] = starts[depth + 2];
+        }
+        token_operators[i] = operator;
+        ++depth; // subexpression keeps the start of its first operand
+      } else if (isNumber(token)) {
+        starts[depth++] = i;
+      } else {
+        return null; // invalid token
+      }
+    }
+    if (depth != 1) {
+      return null; // leftover operands
+    }
+
+    // second pass: lay out instructions, then resolve jump targets
+    int[] position = new int[n]; // instruction index of token i itself
+    int length = 0;
+    for (int i = 0; i < n; ++i) {
+      if (prefix[i] != -1) ++length;
+      position[i] = length++;
+    }
+
+    int[] opcodes = new int[length];
+    String[] tokens = new String[length];
+    Operator[] operators = new Operator[length];
+    int[] targets = new int[length];
+    for (int i = 0; i < n; ++i) {
+      int pc = position[i];
+      if (prefix[i] != -1) {
+        int owner = prefix_owner[i];
+        opcodes[pc - 1] = prefix[i];
+        if (prefix[i] == BRANCH_IF_FALSE) {
+          // `?` falls into `b` when false
+          targets[pc - 1] = position[else_start[owner]];
+        } else if (prefix[i] == JUMP) {
+          // end of `a`, on to the FORMAT of the ternary
+          targets[pc - 1] = position[owner];
+        } else {
+          // `&`/`|` decided, skip past the operator itself
+          targets[pc - 1] = position[owner] + 1;
+        }
+      }
+      tokens[pc] = parsed_postfix.get(i);
+      operators[pc] = token_operators[i];
+      if (token_operators[i] == null) {
+        opcodes[pc] = PUSH;
+      } else if (token_operators[i].arity() == 3 && isTernaryElse(tokens[pc])) {
+        // the chosen operand is already on top of the stack
+        opcodes[pc] = FORMAT;
+      } else {
+        opcodes[pc] = APPLY;
+      }
+    }
+
+    return new CompiledExpression(opcodes, tokens, operators, targets);
+  }
+
+  public String evaluate() {
+    // stack holds operands, as in PostfixCalculator
+    Stack<String> operands = new Stack<String>();
+
+    int pc = 0;
+    while (pc < opcodes.length) {
+      switch (opcodes[pc]) {
+        case PUSH:
+          operands.push(tokens[pc]);
+          break;
+        case APPLY:
+          float[] arguments = new float[operators[pc].arity()];
+          for (int i = arguments.length - 1; i >= 0; --i) {
+            arguments[i] = Float.parseFloat(operands.pop());
+          }
+          try {
+            operands.push(formatResult(operators[pc].apply(arguments)));
+          } catch (Exception err) {
+            return err.getMessage();
+          }
+          break;
+        case JUMP_IF_FALSE:
+          if (Float.parseFloat(operands.peek()) == 0) {
+            operands.pop();
+            operands.push("0.00");
+            pc = targets[pc];
+            continue;
+          }
+          break;
+        case JUMP_IF_TRUE:
+          if (Float.parseFloat(operands.peek()) != 0) {
+            operands.pop();
+            operands.push("1.00");
+            pc = targets[pc];
+            continue;
+          }
+          break;
+        case BRANCH_IF_FALSE:
+          if (Float.parseFloat(operands.pop()) == 0) {
+            pc = targets[pc];
+            continue;
+          }
+          break;
+        case JUMP:
+          pc = targets[pc];
+          continue;
+        case FORMAT:
+          operands.push(formatResult(Float.parseFloat(operands.pop())));
+          break;
+      }
+      ++pc;
+    }
+
+    // compile() made sure exactly one operand is left
+    return operands.pop();
+  }
+}
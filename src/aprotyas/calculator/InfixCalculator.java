@@ -9,6 +9,8 @@
  *  	   algorithm - infixToPostfix()
  *  	d) Evaluates expressions in postfix form - PostfixCalculator.computeExpression()
  *  	e) Outputs results into specified file name - IODriver.writeResults()
+ *  CSV (.csv) and JSON Lines (.jsonl) input files are instead streamed
+ *  through evaluate(), one record at a time - IODriver.processRecords()
  *
  */
 
@@ -17,11 +19,14 @@ package aprotyas.calculator;
 import static aprotyas.util.Util.*;
 
 import aprotyas.util.IODriver;
+import aprotyas.util.Operator;
+import aprotyas.util.OperatorRegistry;
 import aprotyas.util.Queue;
+import aprotyas.util.RecordFormat;
 import aprotyas.util.Stack;
 import java.util.ArrayList;
-import java.util.InputMismatchException;
-import java.util.Scanner;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
 
 public class InfixCalculator {
 
@@ -30,6 +35,13 @@ public class InfixCalculator {
     // check if user supplied input/output file names
     if (args.length != 2) {
       System.out.println("Usage: `java InfixCalculator [input-file] [output-file]`");
+      System.out.println("   or: `java InfixCalculator --warmup [input-file]`");
+      return;
+    }
+
+    // training run for the class-data-sharing archive, see build.sh
+    if (args[0].equals("--warmup")) {
+      warmUp(args[1]);
       return;
     }
 
@@ -37,6 +49,13 @@ public class InfixCalculator {
     String in_name = args[0];
     String out_name = args[1];
 
+    // structured inputs are streamed record by record instead
+    RecordFormat format = RecordFormat.forFile(in_name);
+    if (format != null) {
+      IODriver.processRecords(in_name, out_name, format, InfixCalculator::evaluate);
+      return;
+    }
+
     // extract each line of `in_name` as a single infix expression
     ArrayList<String> infix_expressions = IODriver.readExpressions(in_name);
 
@@ -62,7 +81,60 @@ public class InfixCalculator {
     return;
   }
 
+  static void warmUp(String in_name) {
+    // runs every expression of `in_name`, every registered operator and a
+    // CSV and JSON Lines record through the same code as main(), without
+    // writing anything, so that a training run loads every class a real run
+    // can need
+    for (String s : IODriver.readExpressions(in_name)) {
+      // blank lines crash computeExpression(), in main() as well; they load
+      // nothing worth archiving, so they are skipped here
+      if (!s.trim().isEmpty()) {
+        evaluate(s, null);
+      }
+    }
+
+    for (Operator operator : OperatorRegistry.operators()) {
+      String postfix_expression = "";
+      for (int i = 0; i < operator.arity(); ++i) {
+        postfix_expression += "1,";
+      }
+      postfix_expression += operator.symbol();
+      PostfixCalculator.computeExpression(postfix_expression, false);
+      PostfixCalculator.computeExpression(postfix_expression, true);
+    }
+
+    HashMap<String, String> variables = new HashMap<String, String>();
+    try {
+      RecordFormat csv = RecordFormat.forFile("warmup.csv");
+      csv.header("expression,x");
+      csv.addResult("x + 1,1", evaluate(csv.parse("x + 1,1", variables), variables));
+      variables.clear();
+      RecordFormat jsonl = RecordFormat.forFile("warmup.jsonl");
+      String record = "{\"expression\": \"x + 1\", \"x\": 1}";
+      jsonl.addResult(record, evaluate(jsonl.parse(record, variables), variables));
+    } catch (Exception e) {
+      // the records above are valid
+    }
+  }
+
+  public static String evaluate(String infix_expression, HashMap<String, String> variables) {
+    // both steps of main() for a single expression
+    String postfix_expression;
+    try {
+      postfix_expression = infixToPostfix(infix_expression, variables);
+    } catch (Exception e) {
+      postfix_expression = "Error," + e.getMessage();
+    }
+    return PostfixCalculator.computeExpression(postfix_expression);
+  }
+
   public static String infixToPostfix(String infix_expression) throws Exception {
+    return infixToPostfix(infix_expression, null);
+  }
+
+  public static String infixToPostfix(
+      String infix_expression, HashMap<String, String> variables) throws Exception {
     // queue to arrange overall postfix expression
     // stack to fix operator precedence
     Queue<String> expression = new Queue<String>();
@@ -71,27 +143,26 @@ public class InfixCalculator {
     ArrayList<String> parsed_infix = parseInfix(infix_expression);
 
     for (String token : parsed_infix) {
-      if (isNumber(token)) {
-        // operands uncondtionally enqueued
-        expression.enqueue(token);
-      } else if (isLeftParen(token)) {
-        operators.push(token);
-      } else if (isRightParen(token)) {
-        // pop -> enqueue operators till matching paren found
+      // one registry lookup per token, no number parsing needed for operators.
+      // a `?` is pushed as a marker, but is ordered against the stack like
+      // the `:` operator it turns into
+      Operator operator = OperatorRegistry.lookup(isTernaryIf(token) ? ":" : token);
+      if (isTernaryElse(token)) {
+        // `a` of `cond ? a : b` finished: pop -> enqueue operators till its `?`
         while (true) {
-          if (operators.empty()) {
-            // throw exception for imbalanced expression
-            throw new Exception("Imbalanced infix expression");
+          if (operators.empty() || isLeftParen(operators.peek())) {
+            // `:` without a matching `?`
+            throw new Exception("Imbalanced ternary expression");
           }
-          String temp_token = operators.pop();
-          if (isLeftParen(temp_token)) {
-            // matching opening paren found, done with paren balancing
+          if (isTernaryIf(operators.peek())) {
             break;
-          } else {
-            expression.enqueue(temp_token);
           }
+          expression.enqueue(operators.pop());
         }
-      } else if (isOperator(token)) {
+        // replace the `?` marker with the `:` operator itself
+        operators.pop();
+        operators.push(token);
+      } else if (operator != null) {
         // pop -> enqueue operators till lower precedence
         // or right-associate equal precedence is found
 
@@ -107,11 +178,11 @@ public class InfixCalculator {
           } else {
             // check for left-associative operator of lower precedence
             boolean found_lower_left =
-                (precedence(token) > precedence(operators.peek()))
+                (operator.precedence() > precedence(operators.peek()))
                     && isLeftAssociative(operators.peek());
             // check for right-associative operator of equal (or lower) precedence
             boolean found_equal_right =
-                (precedence(token) >= precedence(operators.peek()))
+                (operator.precedence() >= precedence(operators.peek()))
                     && isRightAssociative(operators.peek());
             if (found_lower_left || found_equal_right) {
               // symbol of lower precedence (or right-associative equal precedence) found
@@ -124,6 +195,53 @@ public class InfixCalculator {
             }
           }
         }
+      } else if (isNumber(token)) {
+        // operands uncondtionally enqueued
+        expression.enqueue(token);
+      } else if (variables != null && variables.containsKey(token)) {
+        // variables are enqueued as their value, which has to be a number
+        String value = variables.get(token);
+        if (!isNumber(value)) {
+          throw new Exception("Invalid value for variable " + token);
+        }
+        expression.enqueue(value);
+      } else if (isLeftParen(token)) {
+        operators.push(token);
+      } else if (isRightParen(token)) {
+        // pop -> enqueue operators till matching paren found
+        while (true) {
+          if (operators.empty()) {
+            // throw exception for imbalanced expression
+            throw new Exception("Imbalanced infix expression");
+          }
+          String temp_token = operators.pop();
+          if (isLeftParen(temp_token)) {
+            // matching opening paren found, done with paren balancing
+            break;
+          } else if (isTernaryIf(temp_token)) {
+            // `?` without a `:` inside these parentheses
+            throw new Exception("Imbalanced ternary expression");
+          } else {
+            expression.enqueue(temp_token);
+          }
+        }
+      } else if (isComma(token)) {
+        // function argument finished: pop -> enqueue operators till the
+        // call's opening paren, which stays on the stack for the next argument
+        while (true) {
+          if (operators.empty()) {
+            // comma outside of any parentheses
+            throw new Exception("Imbalanced infix expression");
+          }
+          if (isLeftParen(operators.peek())) {
+            break;
+          }
+          if (isTernaryIf(operators.peek())) {
+            // `?` without a `:` in this argument
+            throw new Exception("Imbalanced ternary expression");
+          }
+          expression.enqueue(operators.pop());
+        }
       } else {
         // invalid token present in infix expression
         throw new Exception("Invalid token in infix expression");
@@ -132,6 +250,10 @@ public class InfixCalculator {
 
     // pop -> enqueue any remaining operators in the stack
     while (!operators.empty()) {
+      if (isTernaryIf(operators.peek())) {
+        // `?` that never got its `:`
+        throw new Exception("Imbalanced ternary expression");
+      }
       expression.enqueue(operators.pop());
     }
 
@@ -147,43 +269,56 @@ public class InfixCalculator {
 
   public static ArrayList<String> parseInfix(String infix_expression) {
     /*
-     * This function parses an infix_expression string using Java scanner's pattern
-     * matching functionality.
-     *
-     * The scanner in this function looks for any whitespace or punctuation to do
-     * its pattern matching, which coincidentally covers the entire space of
-     * operators we need to match against.
+     * This function parses an infix_expression string by splitting it before
+     * and after any whitespace or punctuation character, which coincidentally
+     * covers the entire space of operators we need to match against.
      *
      * It returns an ArrayList of Strings, where each String can be: i) A number
      * ("5.2") ii) A parentheses ("(") iii) An operator ("&")
+     *
+     * The split used to be done by a regex-delimited java.util.Scanner; it is
+     * done by hand now to keep Scanner and regex classes off the startup path,
+     * producing exactly the same tokens.
      */
 
     ArrayList<String> parsed_infix = new ArrayList<String>();
 
-    // https://stackoverflow.com/questions/2206378/how-to-split-a-string-but-also-keep-the-delimiters
-    String search_pattern =
-        "((?<=\\p{javaWhitespace})|(?=\\p{javaWhitespace})|(?<=\\p{Punct})|(?=\\p{Punct}))";
-    Scanner scanner = new Scanner(infix_expression);
-    scanner.useDelimiter(search_pattern);
-
-    try {
-      while (scanner.hasNext()) {
-        // if next token is a full stop, create a floating point number
-        if (scanner.hasNext("\\.")) {
-          int last_idx = parsed_infix.size() - 1;
-          parsed_infix.set(last_idx, parsed_infix.get(last_idx) + scanner.next() + scanner.next());
+    int length = infix_expression.length();
+    int i = 0;
+    while (i < length) {
+      int end = tokenEnd(infix_expression, i);
+      char c = infix_expression.charAt(i);
+      // if next token is a full stop, create a floating point number
+      if (end - i == 1 && c == '.') {
+        int last_idx = parsed_infix.size() - 1;
+        String integer_part = parsed_infix.get(last_idx);
+        if (end == length) {
+          throw new NoSuchElementException(); // full stop with nothing after it
         }
-        // skip parsed whitespace
-        else if (scanner.hasNext("\\s")) {
-          scanner.next();
-        }
-        // add everything else
-        else parsed_infix.add(scanner.next());
+        end = tokenEnd(infix_expression, end);
+        parsed_infix.set(last_idx, integer_part + infix_expression.substring(i, end));
+      }
+      // skip parsed whitespace
+      else if (end - i == 1 && (c == ' ' || (c >= '\t' && c <= '\r'))) {
+        // nothing to add
       }
-      scanner.close();
-    } catch (InputMismatchException err) {
-      System.out.println("Problem parsing infix expression: " + infix_expression);
+      // add everything else
+      else parsed_infix.add(infix_expression.substring(i, end));
+      i = end;
     }
     return parsed_infix;
   }
+
+  static int tokenEnd(String infix_expression, int start) {
+    // whitespace and punctuation characters are tokens on their own, anything
+    // else runs till the next one of them
+    if (isDelimiter(infix_expression.charAt(start))) {
+      return start + 1;
+    }
+    int end = start + 1;
+    while (end < infix_expression.length() && !isDelimiter(infix_expression.charAt(end))) {
+      ++end;
+    }
+    return end;
+  }
 }
@@ -7,77 +7,76 @@
  *  the first of which is parsePostfix() - parses a postfix expression (String)
  *  and returns an ArrayList<String> of tokens to perform the evaluation on.
  *  The second function is computeExpression() - performs postfix evaluation
- *  algorithm.
+ *  algorithm. Well-formed expressions are evaluated through a
+ *  CompiledExpression, which skips the operands of `&`, `|` and `? :` that
+ *  do not affect the result. Malformed ones (and callers asking for eager
+ *  evaluation) go through the token-by-token evaluation below.
  */
 
 package aprotyas.calculator;
 
 import static aprotyas.util.Util.*;
 
+import aprotyas.util.Operator;
+import aprotyas.util.OperatorRegistry;
 import aprotyas.util.Stack;
 import java.util.ArrayList;
-import java.util.InputMismatchException;
-import java.util.Scanner;
 
 public class PostfixCalculator {
-  static String computeExpression(String expression) {
-    String output = "";
-
-    // stack holds operands
-    Stack<String> operands = new Stack<String>();
+  public static String computeExpression(String expression) {
+    return computeExpression(expression, true);
+  }
 
+  public static String computeExpression(String expression, boolean short_circuit) {
     // split string at commas, get an ArrayList of tokens
     ArrayList<String> parsed_postfix = parsePostfix(expression);
     if (parsed_postfix.get(0).equals("Error")) {
-      output += parsed_postfix.get(1); // error message contained here. How smart Abrar :-)
-      return output;
+      return parsed_postfix.get(1); // error message contained here. How smart Abrar :-)
     }
 
+    if (short_circuit) {
+      CompiledExpression compiled = CompiledExpression.compile(parsed_postfix);
+      if (compiled != null) {
+        return compiled.evaluate();
+      }
+    }
+    return evaluatePostfix(parsed_postfix);
+  }
+
+  static String evaluatePostfix(ArrayList<String> parsed_postfix) {
+    String output = "";
+
+    // stack holds operands
+    Stack<String> operands = new Stack<String>();
+
     // iterating by token through postfix expression
     for (String token : parsed_postfix) {
-      if (isNumber(token)) {
-        operands.push(token);
-      } else if (isOperator(token)) {
-        if (isBinaryOperator(token)) {
-          if (operands.size() < 2) {
-            // should not come here. invalid expression
-            output += "Error during expression evaluation";
-            return output;
-          } else {
-            // pop top two operands from stack
-            // top -> right operand
-            // perform binary operation, then push back to stack
+      Operator operator = OperatorRegistry.lookup(token);
+      if (operator != null) {
+        if (operands.size() < operator.arity()) {
+          // should not come here. invalid expression
+          output += "Error during expression evaluation";
+          return output;
+        } else {
+          // pop `arity` operands from stack
+          // top -> rightmost operand
+          // perform operation, then push back to stack
 
-            float right = Float.parseFloat(operands.pop());
-            float left = Float.parseFloat(operands.pop());
-            try {
-              float result = binaryOperation(left, right, token);
-              // formatting to match expected output
-              operands.push(String.format("%.2f", result));
-            } catch (Exception err) {
-              output += err.getMessage();
-              return output;
-            }
+          float[] arguments = new float[operator.arity()];
+          for (int i = arguments.length - 1; i >= 0; --i) {
+            arguments[i] = Float.parseFloat(operands.pop());
           }
-        } else if (isUnaryOperator(token)) {
-          if (operands.size() < 1) {
-            // should not come here. invalid expression
-            output += "Error during expression evaluation";
+          try {
+            float result = operator.apply(arguments);
+            // formatting to match expected output
+            operands.push(formatResult(result));
+          } catch (Exception err) {
+            output += err.getMessage();
             return output;
-          } else {
-            // pop one operand from stack
-            // perform unary operation, then push back to stack
-
-            float operand = Float.parseFloat(operands.pop());
-            try {
-              float result = unaryOperation(operand, token);
-              operands.push(String.format("%.2f", result));
-            } catch (Exception err) {
-              output += err.getMessage();
-              return output;
-            }
           }
         }
+      } else if (isNumber(token)) {
+        operands.push(token);
       } else {
         // not supposed to come here, just say invalid token found
         output += "Invalid token in postfix expression";
@@ -99,10 +98,8 @@ public class PostfixCalculator {
 
   public static ArrayList<String> parsePostfix(String postfix_expression) {
     /*
-     * This function parses an postfix_expression string using Java scanner's
-     * pattern matching functionality.
-     *
-     * The scanner in this function splits by commas
+     * This function parses an postfix_expression string by splitting it at
+     * commas (done by hand, not with a java.util.Scanner, to keep it cheap)
      *
      * It returns an ArrayList of Strings representing parsed tokens in a postfix
      * expression
@@ -110,18 +107,18 @@ public class PostfixCalculator {
 
     ArrayList<String> parsed_postfix = new ArrayList<String>();
 
-    String search_pattern = ",";
-    Scanner scanner = new Scanner(postfix_expression);
-    scanner.useDelimiter(search_pattern);
-
-    try {
-      while (scanner.hasNext()) {
-        // add tokens separated by commas
-        parsed_postfix.add(scanner.next());
-      }
-      scanner.close();
-    } catch (InputMismatchException err) {
-      System.out.println("Problem parsing infix expression: " + postfix_expression);
+    // a leading comma is skipped, as the Scanner this replaced did
+    int start = postfix_expression.startsWith(",") ? 1 : 0;
+    int comma = postfix_expression.indexOf(',', start);
+    while (comma != -1) {
+      // add tokens separated by commas
+      parsed_postfix.add(postfix_expression.substring(start, comma));
+      start = comma + 1;
+      comma = postfix_expression.indexOf(',', start);
+    }
+    if (start < postfix_expression.length()) {
+      // last token, unless the expression ends in a comma
+      parsed_postfix.add(postfix_expression.substring(start));
     }
     return parsed_postfix;
   }
@@ -0,0 +1,146 @@
+/*
+ *  File name: CsvFormat.java
+ *  Package: aprotyas.util
+ *  File description: The `CsvFormat` class reads comma separated records.
+ *  The header row names the columns; the `expression` column holds the
+ *  expression and every other column is a variable of that name. Fields
+ *  may be double-quoted, with `""` standing for a quote inside them.
+ *  Fields are located by scanning the line once, and only the fields that
+ *  are actually used are copied out of it - no split(), no regex and no
+ *  per-record array of fields. An existing `result` column is overwritten
+ *  rather than duplicated, so an output file can be processed again.
+ */
+
+package aprotyas.util;
+
+import java.util.HashMap;
+
+public class CsvFormat implements RecordFormat {
+  String[] columns; // variable name of each column, null for the expression column
+  int expression_column = -1;
+  int result_column = -1; // index of an existing result column, -1 if none
+  // field span of the result column in the line last scanned, -1 if it is missing
+  String scanned_line;
+  int result_start = -1;
+  int result_end = -1;
+  int scanned_fields;
+
+  public String header(String line) throws Exception {
+    // count the columns first, then copy their (trimmed, unquoted) names
+    int count = 1;
+    for (int end = fieldEnd(line, 0); end < line.length(); end = fieldEnd(line, end + 1)) {
+      ++count;
+    }
+    columns = new String[count];
+    int start = 0;
+    for (int i = 0; i < count; ++i) {
+      int end = fieldEnd(line, start);
+      String name = field(line, start, end).trim();
+      if (name.equals(EXPRESSION_COLUMN)) {
+        expression_column = i;
+      } else if (name.equals(RESULT_COLUMN) && result_column == -1) {
+        result_column = i; // not a variable, its field gets replaced
+      } else {
+        columns[i] = name;
+      }
+      start = end + 1;
+    }
+    if (expression_column == -1) {
+      throw new Exception("Input file has no " + EXPRESSION_COLUMN + " column");
+    }
+    return result_column == -1 ? line + "," + RESULT_COLUMN : line;
+  }
+
+  public String parse(String line, HashMap<String, String> variables) throws Exception {
+    String expression = scan(line, variables);
+    if (expression == null || expression.trim().isEmpty()) {
+      throw new Exception("Missing expression");
+    }
+    return expression;
+  }
+
+  public String addResult(String line, String result) {
+    if (result_column == -1) {
+      return line + "," + quote(result);
+    }
+    if (line != scanned_line) {
+      scan(line, null); // not the line parse() just scanned
+    }
+    if (result_start == -1) {
+      // short record, pad it with empty fields up to the result column
+      StringBuilder builder = new StringBuilder(line);
+      for (int i = scanned_fields; i <= result_column; ++i) {
+        builder.append(',');
+      }
+      return builder.append(quote(result)).toString();
+    }
+    return line.substring(0, result_start) + quote(result) + line.substring(result_end);
+  }
+
+  String scan(String line, HashMap<String, String> variables) {
+    // walks the fields of `line`, putting its variables into `variables` (if
+    // not null) and returning its expression. The span of the result field is
+    // kept for addResult()
+    String expression = null;
+    scanned_line = line;
+    result_start = -1;
+    result_end = -1;
+    scanned_fields = 0;
+    int start = 0;
+    for (int i = 0; i < columns.length && start <= line.length(); ++i) {
+      int end = fieldEnd(line, start);
+      if (i == expression_column) {
+        expression = field(line, start, end);
+      } else if (i == result_column) {
+        result_start = start;
+        result_end = end;
+      } else if (end > start && variables != null) {
+        // empty fields leave their variable undefined
+        variables.put(columns[i], field(line, start, end));
+      }
+      ++scanned_fields;
+      start = end + 1;
+    }
+    return expression;
+  }
+
+  static int fieldEnd(String line, int start) {
+    // index of the comma ending the field starting at `start`, or line length
+    int i = start;
+    if (i < line.length() && line.charAt(i) == '"') {
+      // skip to the closing quote, `""` being an escaped quote
+      ++i;
+      while (i < line.length()) {
+        if (line.charAt(i) == '"') {
+          if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+            ++i;
+          } else {
+            break;
+          }
+        }
+        ++i;
+      }
+    }
+    while (i < line.length() && line.charAt(i) != ',') {
+      ++i;
+    }
+    return i;
+  }
+
+  static String field(String line, int start, int end) {
+    // contents of the field line[start, end), unquoted if need be
+    if (end - start >= 2 && line.charAt(start) == '"' && line.charAt(end - 1) == '"') {
+      String quoted = line.substring(start + 1, end - 1);
+      return quoted.indexOf('"') == -1 ? quoted : quoted.replace("\"\"", "\"");
+    }
+    return line.substring(start, end);
+  }
+
+  static String quote(String value) {
+    // quote the value only if it would otherwise not read back as one field
+    if (value.indexOf(',') == -1 && value.indexOf('"') == -1) {
+      return value;
+    }
+    return "\"" + value.replace("\"", "\"\"") + "\"";
+  }
+}
@@ -10,6 +10,10 @@
  *
  *  ii) writeResults() - Writes each String "result" in an ArrayList<String>
  *  as a separate line in a file with filename specified as an argument.
+ *
+ *  iii) processRecords() - Streams a structured input file (see
+ *  RecordFormat) record by record through an evaluator, writing each
+ *  record back out with its result appended as an extra column.
  */
 
 package aprotyas.util;
@@ -21,6 +25,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 public class IODriver {
   public static ArrayList<String> readExpressions(String filename) {
@@ -61,4 +66,49 @@ public class IODriver {
       System.out.println("Output file could not be written to");
     }
   }
+
+  public static void processRecords(
+      String in_name, String out_name, RecordFormat format, RecordFormat.Evaluator evaluator) {
+    // catch exceptions while reading records, writing results, or closing either;
+    // both files are closed on every path, including an unusable header
+    try (BufferedReader in_reader = new BufferedReader(new FileReader(in_name));
+        BufferedWriter writer =
+            new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(out_name), "utf-8"))) {
+      // one map reused for every record
+      HashMap<String, String> variables = new HashMap<String, String>();
+      boolean first_output = true;
+
+      String line = in_reader.readLine();
+      if (line != null) {
+        String header = format.header(line);
+        if (header != null) {
+          writer.write(header);
+          first_output = false;
+          line = in_reader.readLine();
+        }
+      }
+      while (line != null) {
+        // till EOF reached, evaluate each non-blank record
+        if (!line.trim().isEmpty()) {
+          String result;
+          variables.clear();
+          try {
+            result = evaluator.evaluate(format.parse(line, variables), variables);
+          } catch (Exception err) {
+            result = err.getMessage(); // malformed record, report it in its result column
+          }
+          if (!first_output) writer.newLine(); // no new line after last output
+          writer.write(format.addResult(line, result));
+          first_output = false;
+        }
+        line = in_reader.readLine();
+      }
+      writer.flush();
+    } catch (IOException err) {
+      System.out.println("Records could not be processed");
+    } catch (Exception err) {
+      System.out.println(err.getMessage()); // unusable header
+    }
+  }
 }
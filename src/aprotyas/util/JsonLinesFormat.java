@@ -0,0 +1,273 @@
+/*
+ *  File name: JsonLinesFormat.java
+ *  Package: aprotyas.util
+ *  File description: The `JsonLinesFormat` class reads one flat JSON object
+ *  per line, e.g. {"expression": "x * 2", "x": 1.5}. The `expression` key
+ *  holds the expression and every other key is a variable of that name.
+ *  Variable values may be numbers, strings holding numbers, or booleans
+ *  (true = 1, false = 0); null leaves the variable undefined. The object is
+ *  scanned in place, so number values are copied straight out of the line
+ *  and strings are only unescaped when they contain escapes. The result is
+ *  added as a `result` string member before the closing brace, replacing
+ *  the value of an existing `result` member. Lines that are not a flat
+ *  object are written out as {"record": <the line>, "result": <error>}.
+ */
+
+package aprotyas.util;
+
+import java.util.HashMap;
+
+public class JsonLinesFormat implements RecordFormat {
+  public String header(String line) {
+    return null; // no header, every line is a record
+  }
+
+  // what scanning the line last parsed found, reused by addResult()
+  String scanned_line;
+  boolean scanned_object; // false if the line was not a flat object
+  int[] positions = new int[3];
+
+  public String parse(String line, HashMap<String, String> variables) throws Exception {
+    scanned_line = line;
+    scanned_object = false;
+    String expression = scan(line, variables, positions);
+    scanned_object = true;
+    if (expression == null || expression.trim().isEmpty()) {
+      throw new Exception("Missing expression");
+    }
+    return expression;
+  }
+
+  public String addResult(String line, String result) {
+    if (line != scanned_line) {
+      // not the line parse() just scanned
+      scanned_line = line;
+      try {
+        scan(line, null, positions);
+        scanned_object = true;
+      } catch (Exception err) {
+        scanned_object = false;
+      }
+    }
+    if (!scanned_object) {
+      // not a flat object, wrap the line so that the record still gets its result
+      return "{\"record\":\""
+          + escape(line)
+          + "\",\""
+          + RESULT_COLUMN
+          + "\":\""
+          + escape(result)
+          + "\"}";
+    }
+    if (positions[0] != -1) {
+      // replace the value of the existing result member
+      return line.substring(0, positions[0])
+          + "\""
+          + escape(result)
+          + "\""
+          + line.substring(positions[1]);
+    }
+    // insert the result member before the closing brace of the object
+    int close = positions[2];
+    int last = skipWhitespaceBack(line, close - 1);
+    String separator = line.charAt(last) == '{' ? "" : ",";
+    return line.substring(0, close)
+        + separator
+        + "\""
+        + RESULT_COLUMN
+        + "\":\""
+        + escape(result)
+        + "\""
+        + line.substring(close);
+  }
+
+  static String scan(String line, HashMap<String, String> variables, int[] positions)
+      throws Exception {
+    // walks the flat object on `line`, putting its variables into `variables`
+    // (if not null) and returning its expression. `positions` receives the
+    // start and end of an existing result value (-1 if none) and the index of
+    // the closing brace
+    String expression = null;
+    positions[0] = -1;
+    positions[1] = -1;
+    int i = skipWhitespace(line, 0);
+    if (i == line.length() || line.charAt(i) != '{') {
+      throw new Exception("Invalid JSON record");
+    }
+    i = skipWhitespace(line, i + 1);
+
+    while (i == line.length() || line.charAt(i) != '}') {
+      // "key"
+      if (i == line.length() || line.charAt(i) != '"') {
+        throw new Exception("Invalid JSON record");
+      }
+      int key_end = stringEnd(line, i);
+      String key = string(line, i, key_end);
+      i = skipWhitespace(line, key_end);
+      if (i == line.length() || line.charAt(i) != ':') {
+        throw new Exception("Invalid JSON record");
+      }
+
+      // value
+      int start = skipWhitespace(line, i + 1);
+      int end;
+      String value;
+      if (start == line.length()) {
+        throw new Exception("Invalid JSON record");
+      } else if (line.charAt(start) == '"') {
+        end = stringEnd(line, start);
+        value = string(line, start, end);
+      } else {
+        end = start;
+        while (end < line.length() && ",} \t".indexOf(line.charAt(end)) == -1) {
+          ++end;
+        }
+        if (line.startsWith("true", start) && end - start == 4) {
+          value = "1";
+        } else if (line.startsWith("false", start) && end - start == 5) {
+          value = "0";
+        } else if (line.startsWith("null", start) && end - start == 4) {
+          value = null;
+        } else if (end > start && "-0123456789".indexOf(line.charAt(start)) != -1) {
+          value = line.substring(start, end);
+        } else {
+          // nested objects and arrays can't be variables
+          throw new Exception("Invalid JSON record");
+        }
+      }
+
+      if (key.equals(EXPRESSION_COLUMN)) {
+        expression = value;
+      } else if (key.equals(RESULT_COLUMN)) {
+        // output of an earlier run, to be replaced rather than read
+        positions[0] = start;
+        positions[1] = end;
+      } else if (value != null && variables != null) {
+        variables.put(key, value);
+      }
+
+      // , or }
+      i = skipWhitespace(line, end);
+      if (i < line.length() && line.charAt(i) == ',') {
+        i = skipWhitespace(line, i + 1);
+        if (i < line.length() && line.charAt(i) == '}') {
+          throw new Exception("Invalid JSON record"); // trailing comma
+        }
+      } else if (i == line.length() || line.charAt(i) != '}') {
+        throw new Exception("Invalid JSON record");
+      }
+    }
+
+    positions[2] = i;
+    if (skipWhitespace(line, i + 1) != line.length()) {
+      throw new Exception("Invalid JSON record"); // something after the object
+    }
+    return expression;
+  }
+
+  static int skipWhitespace(String line, int i) {
+    while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+      ++i;
+    }
+    return i;
+  }
+
+  static int skipWhitespaceBack(String line, int i) {
+    while (i >= 0 && Character.isWhitespace(line.charAt(i))) {
+      --i;
+    }
+    return i;
+  }
+
+  static int stringEnd(String line, int start) throws Exception {
+    // index just past the closing quote of the string starting at `start`
+    int i = start + 1;
+    while (i < line.length()) {
+      char c = line.charAt(i);
+      if (c == '\\') {
+        i += 2;
+      } else if (c == '"') {
+        return i + 1;
+      } else {
+        ++i;
+      }
+    }
+    throw new Exception("Invalid JSON record");
+  }
+
+  static String string(String line, int start, int end) throws Exception {
+    // contents of the string line[start, end), quotes included in the range
+    int backslash = line.indexOf('\\', start + 1);
+    if (backslash == -1 || backslash >= end - 1) {
+      return line.substring(start + 1, end - 1);
+    }
+    StringBuilder builder = new StringBuilder(end - start);
+    for (int i = start + 1; i < end - 1; ++i) {
+      char c = line.charAt(i);
+      if (c != '\\') {
+        builder.append(c);
+        continue;
+      }
+      c = line.charAt(++i);
+      switch (c) {
+        case 'n':
+          builder.append('\n');
+          break;
+        case 't':
+          builder.append('\t');
+          break;
+        case 'r':
+          builder.append('\r');
+          break;
+        case 'b':
+          builder.append('\b');
+          break;
+        case 'f':
+          builder.append('\f');
+          break;
+        case 'u':
+          // four hex digits, all before the closing quote at end - 1
+          if (i + 4 >= end - 1) {
+            throw new Exception("Invalid JSON record");
+          }
+          int code = 0;
+          for (int j = i + 1; j <= i + 4; ++j) {
+            char h = line.charAt(j);
+            int digit = h < 128 ? Character.digit(h, 16) : -1; // ASCII digits only
+            if (digit == -1) {
+              throw new Exception("Invalid JSON record");
+            }
+            code = code * 16 + digit;
+          }
+          builder.append((char) code);
+          i += 4;
+          break;
+        default:
+          builder.append(c); // \" \\ \/
+      }
+    }
+    return builder.toString();
+  }
+
+  static String escape(String value) {
+    // quotes, backslashes and control characters have to be escaped
+    StringBuilder builder = null;
+    for (int i = 0; i < value.length(); ++i) {
+      char c = value.charAt(i);
+      if (c != '"' && c != '\\' && c >= ' ') {
+        if (builder != null) builder.append(c);
+        continue;
+      }
+      if (builder == null) {
+        builder = new StringBuilder(value.length() + 8).append(value, 0, i);
+      }
+      if (c == '"' || c == '\\') {
+        builder.append('\\').append(c);
+      } else {
+        String hex = Integer.toHexString(c);
+        builder.append("\\u00").append(hex.length() == 1 ? "0" : "").append(hex);
+      }
+    }
+    return builder == null ? value : builder.toString();
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ *  File name: Operator.java
+ *  Package: aprotyas.util
+ *  File description: The `Operator` class describes a single operator or
+ *  function understood by the calculator - its symbol, arity, precedence,
+ *  associativity and the implementation used to evaluate it. Instances are
+ *  registered once with the `OperatorRegistry`, which both calculators
+ *  consult while converting and evaluating expressions.
+ */
+
+package aprotyas.util;
+
+public class Operator {
+  // implementation of an operator, operands are passed left to right
+  public interface Implementation {
+    float apply(float[] operands) throws Exception;
+  }
+
+  private final String symbol;
+  private final int arity;
+  private final int precedence;
+  private final boolean rightAssociative;
+  private final Implementation implementation;
+
+  public Operator(
+      String symbol,
+      int arity,
+      int precedence,
+      boolean rightAssociative,
+      Implementation implementation) {
+    this.symbol = symbol;
+    this.arity = arity;
+    this.precedence = precedence;
+    this.rightAssociative = rightAssociative;
+    this.implementation = implementation;
+  }
+
+  public String symbol() {
+    return symbol;
+  }
+
+  public int arity() {
+    return arity;
+  }
+
+  public int precedence() {
+    return precedence;
+  }
+
+  public boolean isRightAssociative() {
+    return rightAssociative;
+  }
+
+  public float apply(float[] operands) throws Exception {
+    return implementation.apply(operands);
+  }
+}
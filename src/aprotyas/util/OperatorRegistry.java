@@ -0,0 +1,106 @@
+/*
+ *  File name: OperatorRegistry.java
+ *  Package: aprotyas.util
+ *  File description: The `OperatorRegistry` class holds every operator and
+ *  function known to the calculator, keyed by symbol in a hash map so that
+ *  identifying a token is a single O(1) lookup regardless of how many
+ *  functions are registered. The built-in operators are registered in the
+ *  static initializer below; more can be added at runtime with register().
+ */
+
+package aprotyas.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+
+public class OperatorRegistry {
+  private static final HashMap<String, Operator> operators = new HashMap<String, Operator>();
+
+  static {
+    // precedence list of operators, higher means greater precedence of course
+    // http://www.cs.bilkent.edu.tr/~guvenir/courses/CS101/op_precedence.html
+    // parentheses are not operators, Util.precedence() deals with them
+    register(new Operator("!", 1, 10, true, ops -> ops[0] != 0 ? 0 : 1));
+    register(new Operator("^", 2, 9, true, ops -> (float) Math.pow(ops[0], ops[1])));
+    register(new Operator("*", 2, 8, false, ops -> ops[0] * ops[1]));
+    register(
+        new Operator(
+            "/",
+            2,
+            8,
+            false,
+            ops -> {
+              if (ops[1] == 0) {
+                throw new Exception("Divide by 0 error");
+              }
+              return ops[0] / ops[1];
+            }));
+    register(new Operator("%", 2, 8, true, ops -> ops[0] % ops[1]));
+    register(new Operator("+", 2, 7, false, ops -> ops[0] + ops[1]));
+    register(new Operator("-", 2, 7, false, ops -> ops[0] - ops[1]));
+    register(new Operator("sin", 1, 6, false, ops -> (float) Math.sin(ops[0]))); // not sure about this
+    register(new Operator("cos", 1, 6, false, ops -> (float) Math.cos(ops[0])));
+    // may return NaN (or really large number) - not a problem, I think...
+    register(new Operator("tan", 1, 6, false, ops -> (float) Math.tan(ops[0])));
+    // for this group, can't return a boolean. 1 = true, 0 = false
+    register(new Operator("<", 2, 5, false, ops -> ops[0] < ops[1] ? 1 : 0));
+    register(new Operator(">", 2, 5, false, ops -> ops[0] > ops[1] ? 1 : 0));
+    register(new Operator("=", 2, 4, false, ops -> ops[0] == ops[1] ? 1 : 0));
+    register(new Operator("&", 2, 3, false, ops -> ops[0] != 0 && ops[1] != 0 ? 1 : 0));
+    register(new Operator("|", 2, 2, false, ops -> ops[0] != 0 || ops[1] != 0 ? 1 : 0));
+    // `cond ? a : b` - the `?` only opens the ternary, `:` is the operator
+    register(new Operator(":", 3, 1, true, ops -> ops[0] != 0 ? ops[1] : ops[2]));
+
+    // the newer functions bind to their (parenthesized) arguments as tightly
+    // as `!` does, so `sqrt 4 + 5` is sqrt(4) + 5. sin, cos and tan above keep
+    // their original, looser binding so that existing outputs don't change:
+    // `sin 0 + 1` is sin(0 + 1)
+    register(new Operator("log", 1, 10, true, ops -> (float) Math.log(ops[0])));
+    register(new Operator("exp", 1, 10, true, ops -> (float) Math.exp(ops[0])));
+    register(new Operator("sqrt", 1, 10, true, ops -> (float) Math.sqrt(ops[0])));
+    register(new Operator("min", 2, 10, true, ops -> Math.min(ops[0], ops[1])));
+    register(new Operator("max", 2, 10, true, ops -> Math.max(ops[0], ops[1])));
+  }
+
+  public static void register(Operator operator) {
+    // a symbol that reads as a number would never reach the registry, and the
+    // postfix form uses commas and parentheses as structure
+    String symbol = operator.symbol();
+    if (Util.isNumber(symbol)
+        || Util.isLeftParen(symbol)
+        || Util.isRightParen(symbol)
+        || Util.isComma(symbol)
+        || Util.isTernaryIf(symbol)
+        || !isSingleToken(symbol)) {
+      throw new IllegalArgumentException("Cannot register operator `" + symbol + "`");
+    }
+    operators.put(symbol, operator);
+  }
+
+  static boolean isSingleToken(String symbol) {
+    // infix expressions are split before and after every punctuation and
+    // whitespace character, so a symbol is either one punctuation character
+    // (not the `.` of a decimal number) or made of no such characters at all,
+    // e.g. `<=` could never be typed as a single token
+    if (symbol.isEmpty()) return false;
+    if (symbol.length() == 1 && Util.isDelimiter(symbol.charAt(0))) {
+      return !Character.isWhitespace(symbol.charAt(0)) && symbol.charAt(0) != '.';
+    }
+    for (int i = 0; i < symbol.length(); ++i) {
+      if (Util.isDelimiter(symbol.charAt(i))) return false;
+    }
+    return true;
+  }
+
+  public static Operator lookup(String symbol) {
+    // null if `symbol` is not a registered operator
+    return operators.get(symbol);
+  }
+
+  public static Collection<Operator> operators() {
+    // every registered operator, in no particular order; read-only, operators
+    // are added through register()
+    return Collections.unmodifiableCollection(operators.values());
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ *  File name: RecordFormat.java
+ *  Package: aprotyas.util
+ *  File description: The `RecordFormat` interface is implemented by the
+ *  structured input formats understood by IODriver.processRecords(). A
+ *  record is a single line holding an expression plus named variable
+ *  values; the format extracts them, and appends the evaluated result to
+ *  the original line as an extra column. Implementations are:
+ *
+ *  i)  CsvFormat - header row naming the columns, one of which is
+ *  `expression`, the rest being variables
+ *
+ *  ii) JsonLinesFormat - one flat JSON object per line, with an
+ *  `expression` key and the variables as the other keys
+ */
+
+package aprotyas.util;
+
+import java.util.HashMap;
+
+public interface RecordFormat {
+  // evaluates one expression with the given variable values
+  interface Evaluator {
+    String evaluate(String expression, HashMap<String, String> variables);
+  }
+
+  // name of the column holding the expression, and of the column added
+  String EXPRESSION_COLUMN = "expression";
+  String RESULT_COLUMN = "result";
+
+  // called with the first line of the input. Returns the line to write in its
+  // place, or null if the format has no header and the line is a record
+  String header(String line) throws Exception;
+
+  // fills `variables` from the record and returns its expression
+  String parse(String line, HashMap<String, String> variables) throws Exception;
+
+  // `line` with `result` appended as an extra column
+  String addResult(String line, String result);
+
+  static RecordFormat forFile(String filename) {
+    // picked by file extension, null for plain one-expression-per-line files
+    if (filename.endsWith(".csv")) return new CsvFormat();
+    if (filename.endsWith(".jsonl")) return new JsonLinesFormat();
+    return null;
+  }
+}
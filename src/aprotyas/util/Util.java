@@ -3,8 +3,9 @@
  *  Package: aprotyas.util
  *  File description: The `Util` class consists of a collection of
  *  functions used frequently in both the `InfixCalculator` and the
- *  `PostfixCalculator` classes, for operator identification and
- *  operation evaluation purposes.
+ *  `PostfixCalculator` classes, for token identification and result
+ *  formatting purposes. Operator metadata and implementations live in the
+ *  `OperatorRegistry`, which evaluation goes through directly.
  */
 
 package aprotyas.util;
@@ -29,6 +30,15 @@ public class Util {
     return s.equals(")");
   }
 
+  public static boolean isTernaryIf(String s) {
+    // opens a `cond ? a : b` ternary, closed by its `:` operator
+    return s.equals("?");
+  }
+
+  public static boolean isTernaryElse(String s) {
+    return s.equals(":");
+  }
+
   public static boolean isNumber(String s) {
     // if reinterpreting to a float does not throw an exception, then `s` was a
     // number
@@ -40,139 +50,85 @@ public class Util {
     }
   }
 
-  public static boolean isOperator(String s) {
-    // more operators can go here as needed
-    return s.equals("+")
-        || s.equals("-")
-        || s.equals("*")
-        || s.equals("/")
-        || s.equals(">")
-        || s.equals("<")
-        || s.equals("=")
-        || s.equals("&")
-        || s.equals("|")
-        || s.equals("!")
-        || s.equals("^")
-        || s.equals("%")
-        || s.equals("sin")
-        || s.equals("cos")
-        || s.equals("tan");
+  public static boolean isComma(String s) {
+    // separates the arguments of a multi-argument function call
+    return s.equals(",");
   }
 
-  public static boolean isUnaryOperator(String s) {
-    // isOperator() check is unnecessary but am paranoid
-    return isOperator(s)
-        && (s.equals("!") || s.equals("sin") || s.equals("cos") || s.equals("tan"));
+  public static String formatResult(float result) {
+    // same output as String.format("%.2f", result), without loading the
+    // Formatter and regex machinery: the shortest decimal representation of
+    // the (double) value, rounded half up to 2 decimal places
+    if (Float.isNaN(result)) return "NaN";
+    double value = result;
+    String sign = Double.compare(value, 0.0) < 0 ? "-" : ""; // -0.0 too
+    if (Double.isInfinite(value)) return sign + "Infinity";
+
+    String repr = Double.toString(Math.abs(value));
+    int exponent_idx = repr.indexOf('E');
+    if (exponent_idx != -1 && repr.charAt(exponent_idx + 1) == '-') {
+      // below 0.001, always rounds to 0
+      return sign + "0.00";
+    }
+
+    // digits of the value behind a 0 that absorbs any carry, and how many of
+    // them are before the decimal point, e.g. "12.345" -> "012345", 3
+    String mantissa = exponent_idx == -1 ? repr : repr.substring(0, exponent_idx);
+    int point_idx = mantissa.indexOf('.');
+    String digits = "0" + mantissa.substring(0, point_idx) + mantissa.substring(point_idx + 1);
+    int point = point_idx + 1;
+    if (exponent_idx != -1) point += Integer.parseInt(repr.substring(exponent_idx + 1));
+
+    // keep the integer digits and 2 decimals, padding with zeros
+    char[] kept = new char[point + 2];
+    for (int i = 0; i < kept.length; ++i) {
+      kept[i] = i < digits.length() ? digits.charAt(i) : '0';
+    }
+    if (kept.length < digits.length() && digits.charAt(kept.length) >= '5') {
+      // round half up
+      int i = kept.length - 1;
+      while (kept[i] == '9') {
+        kept[i--] = '0';
+      }
+      ++kept[i];
+    }
+
+    // integer part without leading zeros (but at least one digit), then decimals
+    int first = 0;
+    while (first < point - 1 && kept[first] == '0') {
+      ++first;
+    }
+    return sign
+        + new String(kept, first, point - first)
+        + "."
+        + new String(kept, point, 2);
   }
 
-  public static boolean isBinaryOperator(String s) {
-    // isOperator() check is doubly unnecessary but am doubly paranoid
-    return isOperator(s) && !isUnaryOperator(s);
+  public static boolean isDelimiter(char c) {
+    // characters infix expressions are split at - each one is a token on its
+    // own: whitespace, or ASCII punctuation !"#$%&'()*+,-./:;<=>?@[\]^_`{|}~
+    return Character.isWhitespace(c)
+        || (c >= '!' && c <= '/')
+        || (c >= ':' && c <= '@')
+        || (c >= '[' && c <= '`')
+        || (c >= '{' && c <= '~');
   }
 
   public static int precedence(String s) {
-    // precedence list of operators, higher means greater precedence of course
-    // http://www.cs.bilkent.edu.tr/~guvenir/courses/CS101/op_precedence.html
-    switch (s) {
-      case ")":
-        return 10;
-      case "!":
-        return 9;
-      case "^":
-        return 8;
-      case "*":
-      case "/":
-      case "%":
-        return 7;
-      case "+":
-      case "-":
-        return 6;
-      case "sin":
-      case "cos":
-      case "tan":
-        return 5; // not sure about this
-      case "<":
-      case ">":
-        return 4;
-      case "=":
-        return 3;
-      case "&":
-        return 2;
-      case "|":
-        return 1;
-      case "(":
-        return 0;
-      default:
-        return -1; // should not happen
-    }
+    // parentheses (and an open ternary) bracket every operator, the rest come
+    // from the registry
+    if (isRightParen(s)) return 11;
+    if (isLeftParen(s) || isTernaryIf(s)) return 0;
+    Operator operator = OperatorRegistry.lookup(s);
+    return operator != null ? operator.precedence() : -1; // -1 should not happen
   }
 
   public static boolean isRightAssociative(String s) {
-    return s.equals("!") || s.equals("^") || s.equals("%");
+    Operator operator = OperatorRegistry.lookup(s);
+    return operator != null && operator.isRightAssociative();
   }
 
   public static boolean isLeftAssociative(String s) {
     return !isRightAssociative(s);
   }
-
-  public static float binaryOperation(float left, float right, String operator) throws Exception {
-    // if only I could borrow python's eval() :-)
-    boolean left_bool = left != 0; // for logical operations
-    boolean right_bool = right != 0; // for logical operations
-    switch (operator) {
-      case "+":
-        return left + right;
-      case "-":
-        return left - right;
-      case "*":
-        return left * right;
-      case "/":
-        if (right == 0) {
-          throw new Exception(
-              "Divide by 0 error"); // should be arithmetic error, but I'm too lazy to catch
-          // multiple exception types in PostfixCalculator
-        }
-        return left / right;
-      case "%":
-        return left % right;
-      case "^":
-        return (float) Math.pow(left, right); // Math.pow() -> double
-
-        // for this group, can't return a boolean. 1 = true, 0 = false
-      case ">":
-        return left > right ? 1 : 0;
-      case "<":
-        return left < right ? 1 : 0;
-      case "=":
-        return left == right ? 1 : 0;
-      case "&":
-        return left_bool && right_bool ? 1 : 0;
-      case "|":
-        return left_bool || right_bool ? 1 : 0;
-      default:
-        throw new Exception(
-            "Error during expression evaluation"); // should not come here, but if thrown deal with
-        // it in PostfixCalculator
-    }
-  }
-
-  public static float unaryOperation(float operand, String operator) throws Exception {
-    boolean operand_bool = operand != 0; // for logical not
-    switch (operator) {
-      case "!":
-        return !operand_bool ? 1 : 0;
-      case "sin":
-        return (float) Math.sin(operand);
-      case "cos":
-        return (float) Math.cos(operand);
-      case "tan":
-        return (float)
-            Math.tan(
-                operand); // may return NaN (or really large number) - not a problem, I think...
-      default:
-        throw new Exception(
-            "Error during expression evaluation"); // should not come here, but if thrown deal with
-                                                   // it in PostfixCalculator
-    }
-  }
 }